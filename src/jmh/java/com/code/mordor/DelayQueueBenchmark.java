@@ -0,0 +1,106 @@
+package com.code.mordor;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+Cost of a batch of INSERTS puts into a DelayQueue that already holds size elements, and of putting
+size elements in and then draining them once expired. The delays are random but already in the past,
+so draining measures the heap and the getDelay() calls rather than waiting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DelayQueueBenchmark {
+    private static final int INSERTS = 1000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private DelayedQueueDemo.DelayObject[] objects;
+    private DelayedQueueDemo.DelayObject[] filler;
+    private DelayedQueueDemo.DelayObject[] inserts;
+
+    @Setup(Level.Trial)
+    public void createObjects() {
+        objects = new DelayedQueueDemo.DelayObject[size];
+        for (int i = 0; i < size; i++) {
+            objects[i] = new DelayedQueueDemo.DelayObject("A" + i, -ThreadLocalRandom.current().nextInt(1, 60_000));
+        }
+        // ascending delays: every put lands at the bottom of the heap, so refilling stays cheap
+        filler = new DelayedQueueDemo.DelayObject[size];
+        for (int i = 0; i < size; i++) {
+            filler[i] = new DelayedQueueDemo.DelayObject("F" + i, -120_000 + (long) i * 60_000 / size);
+        }
+        inserts = new DelayedQueueDemo.DelayObject[INSERTS];
+        for (int i = 0; i < INSERTS; i++) {
+            inserts[i] = new DelayedQueueDemo.DelayObject("I" + i, -ThreadLocalRandom.current().nextInt(1, 120_000));
+        }
+    }
+
+    /*
+    Filled once per trial. Each iteration is one batch of INSERTS puts, and the batch is removed again
+    after the iteration, so the queue is back at size elements for the next one. remove() allocates
+    nothing, so the GC profiler only sees what the puts allocate.
+     */
+    @State(Scope.Thread)
+    public static class Filled {
+        DelayQueue<DelayedQueueDemo.DelayObject> queue;
+        int next;
+
+        @Setup(Level.Trial)
+        public void fill(DelayQueueBenchmark benchmark) {
+            queue = new DelayQueue<>();
+            for (DelayedQueueDemo.DelayObject object : benchmark.filler) {
+                queue.put(object);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void removeInserted(DelayQueueBenchmark benchmark) {
+            for (int i = 0; i < next; i++) {
+                queue.remove(benchmark.inserts[i]);
+            }
+            next = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Empty {
+        DelayQueue<DelayedQueueDemo.DelayObject> queue;
+
+        @Setup(Level.Invocation)
+        public void create() {
+            queue = new DelayQueue<>();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 10, batchSize = INSERTS)
+    @Measurement(iterations = 20, batchSize = INSERTS)
+    public DelayQueue<DelayedQueueDemo.DelayObject> insert(Filled filled) {
+        filled.queue.put(inserts[filled.next++]);
+        return filled.queue;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int insertAndExpire(Empty empty) {
+        for (DelayedQueueDemo.DelayObject object : objects) {
+            empty.queue.put(object);
+        }
+        int expired = 0;
+        while (empty.queue.poll() != null) {
+            expired++;
+        }
+        return expired;
+    }
+}
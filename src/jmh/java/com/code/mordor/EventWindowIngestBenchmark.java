@@ -0,0 +1,58 @@
+package com.code.mordor;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+acceptEvent() throughput with several producers. Every iteration starts from an empty window and every
+thread owns every INGEST_THREADS-th millisecond, so each call inserts a new node instead of replacing a value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventWindowIngestBenchmark {
+    private static final int INGEST_THREADS = 4;
+
+    private ConcurrentSkipListMapDemo.EventWindowSort eventWindowSort;
+    private long baseMilli;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        eventWindowSort = new ConcurrentSkipListMapDemo.EventWindowSort();
+        baseMilli = System.currentTimeMillis();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+
+        int index;
+        long next;
+
+        @Setup(Level.Trial)
+        public void assignIndex() {
+            index = THREAD_INDEX.getAndIncrement() % INGEST_THREADS;
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            next = 0;
+        }
+    }
+
+    @Benchmark
+    @Threads(INGEST_THREADS)
+    public void ingest(Cursor cursor) {
+        long epochMilli = baseMilli + cursor.next++ * INGEST_THREADS + cursor.index;
+        eventWindowSort.acceptEvent(new ConcurrentSkipListMapDemo.Event(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneOffset.UTC), "event"));
+    }
+}
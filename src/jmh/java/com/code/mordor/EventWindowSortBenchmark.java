@@ -0,0 +1,71 @@
+package com.code.mordor;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/*
+Window queries on EventWindowSort; ingest is measured in EventWindowIngestBenchmark. The queries sum the content lengths rather than count(),
+so every element is actually read. Events are spread evenly over the 15 minutes before a fixed
+"now", so every window always holds the same events no matter how long the run takes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventWindowSortBenchmark {
+    private static final Duration[] WINDOWS = {Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(15)};
+
+    @Param({"100000", "1000000"})
+    public int events;
+
+    private ZonedDateTime now;
+    private ConcurrentSkipListMapDemo.EventWindowSort eventWindowSort;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        now = ZonedDateTime.now();
+        long stepNanos = Duration.ofMinutes(15).toNanos() / events;
+        eventWindowSort = new ConcurrentSkipListMapDemo.EventWindowSort();
+        for (int i = 0; i < events; i++) {
+            eventWindowSort.acceptEvent(new ConcurrentSkipListMapDemo.Event(now.minusNanos(i * stepNanos), "event-" + i));
+        }
+    }
+
+    @Benchmark
+    public long lastMinuteSequential() {
+        return eventWindowSort.getEventsBetween(now.minusMinutes(1), now, false)
+                .mapToLong(event -> event.getContent().length())
+                .sum();
+    }
+
+    @Benchmark
+    public long lastFifteenMinutesSequential() {
+        return eventWindowSort.getEventsBetween(now.minusMinutes(15), now, false)
+                .mapToLong(event -> event.getContent().length())
+                .sum();
+    }
+
+    @Benchmark
+    public long lastFifteenMinutesParallel() {
+        return eventWindowSort.getEventsBetween(now.minusMinutes(15), now, true)
+                .mapToLong(event -> event.getContent().length())
+                .sum();
+    }
+
+    @Benchmark
+    public Map<Duration, Long> multiWindowSequential() {
+        return eventWindowSort.queryWindows(now, false, Collectors.counting(), WINDOWS);
+    }
+
+    @Benchmark
+    public Map<Duration, Long> multiWindowParallel() {
+        return eventWindowSort.queryWindows(now, true, Collectors.counting(), WINDOWS);
+    }
+}
@@ -0,0 +1,92 @@
+package com.code.mordor;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+The two hand-offs from SynchronousQueueDemo, plus a round trip through a long-lived echo thread.
+
+The one-shot benchmarks hand a single element to a consumer running on a pool thread, exactly like the demo.
+The latch version needs a second latch to learn that the consumer has read the value;
+put() on a SynchronousQueue already only returns once the element has been taken.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SynchronousQueueBenchmark {
+
+    private ExecutorService consumerExecutor;
+    private Thread echo;
+    private final SynchronousQueue<Integer> ping = new SynchronousQueue<>();
+    private final SynchronousQueue<Integer> pong = new SynchronousQueue<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        consumerExecutor = Executors.newSingleThreadExecutor();
+        echo = new Thread(() -> {
+            try {
+                while (true) {
+                    pong.put(ping.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "echo");
+        echo.setDaemon(true);
+        echo.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        echo.interrupt();
+        consumerExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public Integer synchronousQueuePingPong() throws InterruptedException {
+        ping.put(ThreadLocalRandom.current().nextInt());
+        return pong.take();
+    }
+
+    @Benchmark
+    public Integer synchronousQueueHandOff() throws InterruptedException {
+        SynchronousQueue<Integer> synchronousQueue = new SynchronousQueue<>();
+        AtomicInteger consumed = new AtomicInteger();
+        consumerExecutor.execute(() -> {
+            try {
+                consumed.set(synchronousQueue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Integer producedElement = ThreadLocalRandom.current().nextInt();
+        synchronousQueue.put(producedElement);
+        return producedElement;
+    }
+
+    @Benchmark
+    public Integer latchAndAtomicIntegerHandOff() throws InterruptedException {
+        AtomicInteger sharedState = new AtomicInteger();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        CountDownLatch consumed = new CountDownLatch(1);
+        AtomicInteger consumedElement = new AtomicInteger();
+        consumerExecutor.execute(() -> {
+            try {
+                countDownLatch.await();
+                consumedElement.set(sharedState.get());
+                consumed.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        sharedState.set(ThreadLocalRandom.current().nextInt());
+        countDownLatch.countDown();
+        consumed.await();
+        return consumedElement.get();
+    }
+}
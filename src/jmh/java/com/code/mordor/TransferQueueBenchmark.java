@@ -0,0 +1,103 @@
+package com.code.mordor;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TransferQueue;
+
+/*
+transfer() against take() on a shared LinkedTransferQueue, with as many consumers as producers.
+Each group name says how many threads sit on either side. The timeouts only matter when JMH stops
+one side of a group before the other; in steady state the hand-off happens well within them.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferQueueBenchmark {
+    private static final long TIMEOUT_MILLIS = 10;
+
+    private final TransferQueue<String> transferQueue = new LinkedTransferQueue<>();
+
+    @Benchmark
+    @Group("threads1")
+    @GroupThreads(1)
+    public void transfer1(HandOffs handOffs) throws InterruptedException {
+        transfer(handOffs);
+    }
+
+    @Benchmark
+    @Group("threads1")
+    @GroupThreads(1)
+    public void take1(HandOffs handOffs) throws InterruptedException {
+        take(handOffs);
+    }
+
+    @Benchmark
+    @Group("threads4")
+    @GroupThreads(4)
+    public void transfer4(HandOffs handOffs) throws InterruptedException {
+        transfer(handOffs);
+    }
+
+    @Benchmark
+    @Group("threads4")
+    @GroupThreads(4)
+    public void take4(HandOffs handOffs) throws InterruptedException {
+        take(handOffs);
+    }
+
+    @Benchmark
+    @Group("threads16")
+    @GroupThreads(16)
+    public void transfer16(HandOffs handOffs) throws InterruptedException {
+        transfer(handOffs);
+    }
+
+    @Benchmark
+    @Group("threads16")
+    @GroupThreads(16)
+    public void take16(HandOffs handOffs) throws InterruptedException {
+        take(handOffs);
+    }
+
+    @Benchmark
+    @Group("threads64")
+    @GroupThreads(64)
+    public void transfer64(HandOffs handOffs) throws InterruptedException {
+        transfer(handOffs);
+    }
+
+    @Benchmark
+    @Group("threads64")
+    @GroupThreads(64)
+    public void take64(HandOffs handOffs) throws InterruptedException {
+        take(handOffs);
+    }
+
+    /*
+    Counts only calls that actually handed an element over. The primary score also includes calls that
+    timed out, so compare thread counts on the transferred and taken counters.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class HandOffs {
+        public long transferred;
+        public long taken;
+    }
+
+    private void transfer(HandOffs handOffs) throws InterruptedException {
+        if (transferQueue.tryTransfer("A", TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            handOffs.transferred++;
+        }
+    }
+
+    private void take(HandOffs handOffs) throws InterruptedException {
+        if (transferQueue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS) != null) {
+            handOffs.taken++;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.code.mordor.asyncmethod;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/*
+Time from startProcess() to the value coming back out of endProcess().
+ThreadAsyncExecutor starts a new thread per task, so this is mostly thread creation and the wait/notify hand-back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThreadAsyncExecutorBenchmark {
+
+    private final ThreadAsyncExecutor executor = new ThreadAsyncExecutor();
+    private final Callable<Integer> task = () -> 42;
+
+    @Benchmark
+    public Integer submitToComplete() throws ExecutionException, InterruptedException {
+        return executor.endProcess(executor.startProcess(task));
+    }
+
+    @Benchmark
+    public Integer submitToCompleteWithCallback() throws ExecutionException, InterruptedException {
+        return executor.endProcess(executor.startProcess(task, (value, ex) -> {
+        }));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer submitToCompleteContended() throws ExecutionException, InterruptedException {
+        return executor.endProcess(executor.startProcess(task));
+    }
+}
@@ -2,11 +2,19 @@ package com.code.mordor;
 
 
 import java.sql.Time;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.util.Comparator;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.*;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static org.junit.Assert.*;
 
@@ -45,11 +53,115 @@ public class ConcurrentSkipListMapDemo {
 
 
     public static class EventWindowSort {
-        private final ConcurrentSkipListMap<ZonedDateTime, String> events
-                = new ConcurrentSkipListMap<>(Comparator.comparingLong(value -> value.toInstant().toEpochMilli()));
+        static final Comparator<ZonedDateTime> BY_EPOCH_MILLI
+                = Comparator.comparingLong(value -> value.toInstant().toEpochMilli());
+        static final long BUCKET_MILLIS = 1000;
+
+        private final ConcurrentSkipListMap<ZonedDateTime, String> events;
+        /*
+    Number of events per second of event time. The skip list can only count a range by walking it,
+    so range spliterators use these counters to estimate their size and to find a balanced split point.
+     */
+        private final ConcurrentSkipListMap<Long, AtomicLong> bucketCounts = new ConcurrentSkipListMap<>();
+        private final MappedEventLog log;
+        /*
+    Everything older than the watermark has been spilled: it is only in the log, no longer in memory.
+     */
+        private volatile long coldWatermark = Long.MIN_VALUE;
+
+        public EventWindowSort() {
+            this(null);
+        }
+
+        /*
+    With a log attached, every accepted event is also appended to it,
+    so older events can later be dropped from memory and still be queried.
+     */
+        public EventWindowSort(MappedEventLog log) {
+            this.events = new ConcurrentSkipListMap<>(BY_EPOCH_MILLI);
+            this.log = log;
+        }
+
+        /*
+    Used by replay: building the skip list from an already sorted map is linear,
+    unlike putting the events in one at a time.
+     */
+        EventWindowSort(MappedEventLog log, SortedMap<ZonedDateTime, String> sortedEvents, ZonedDateTime coldBefore) {
+            this.events = new ConcurrentSkipListMap<>(sortedEvents);
+            this.log = log;
+            this.coldWatermark = coldBefore.toInstant().toEpochMilli();
+            events.keySet().forEach(this::counted);
+        }
 
         void acceptEvent(Event event) {
-            events.put(event.getTime(), event.getContent());
+            if (log != null) {
+                log.append(event);
+            }
+            long time = event.getTime().toInstant().toEpochMilli();
+            if (time >= coldWatermark) {
+                if (events.put(event.getTime(), event.getContent()) == null) {
+                    counted(event.getTime());
+                }
+                // a spill may have moved the watermark past this event between the check and the put
+                if (time < coldWatermark && events.remove(event.getTime()) != null) {
+                    uncounted(event.getTime());
+                }
+            }
+        }
+
+        private void counted(ZonedDateTime time) {
+            bucketCounts.computeIfAbsent(bucket(time.toInstant().toEpochMilli()), key -> new AtomicLong())
+                    .incrementAndGet();
+        }
+
+        private void uncounted(ZonedDateTime time) {
+            AtomicLong count = bucketCounts.get(bucket(time.toInstant().toEpochMilli()));
+            if (count != null) {
+                count.decrementAndGet();
+            }
+        }
+
+        private static long bucket(long epochMilli) {
+            return Math.floorDiv(epochMilli, BUCKET_MILLIS);
+        }
+
+        /*
+    Drops everything older than cutoff from memory. The events are already in the log, so queries
+    through getHistoryBetween() keep seeing them.
+     */
+        synchronized void spillOlderThan(ZonedDateTime cutoff) {
+            if (log == null) {
+                throw new IllegalStateException("Cannot spill without an event log");
+            }
+            coldWatermark = Math.max(coldWatermark, cutoff.toInstant().toEpochMilli());
+            for (ZonedDateTime time : events.headMap(cutoff).keySet()) {
+                if (events.remove(time) != null) {
+                    uncounted(time);
+                }
+            }
+            bucketCounts.headMap(bucket(cutoff.toInstant().toEpochMilli())).clear();
+        }
+
+        /*
+    Events in [from, to), read from the log below the watermark and from memory above it.
+    Both parts are in time order and keep only the last event per millisecond, so the result is the same
+    wherever the watermark sits.
+    If a spill moves the watermark while we read, the hot part may have lost events, so we read again.
+     */
+        Stream<Event> getHistoryBetween(ZonedDateTime from, ZonedDateTime to) {
+            while (true) {
+                long watermark = coldWatermark;
+                Stream<Event> cold = Stream.empty();
+                ZonedDateTime hotFrom = from;
+                if (from.toInstant().toEpochMilli() < watermark) {
+                    hotFrom = ZonedDateTime.ofInstant(Instant.ofEpochMilli(watermark), from.getZone());
+                    cold = log.stream(from, hotFrom.isBefore(to) ? hotFrom : to);
+                }
+                Stream<Event> hot = hotFrom.isBefore(to) ? snapshot(hotFrom, to).stream() : Stream.empty();
+                if (watermark == coldWatermark) {
+                    return Stream.concat(cold, hot);
+                }
+            }
         }
 
         /*
@@ -57,17 +169,296 @@ public class ConcurrentSkipListMapDemo {
     To get all events that arrived within the past minute, we can use the tailMap() method and pass the time from which we want to get elements:
      */
         ConcurrentNavigableMap<ZonedDateTime, String> getEventsFromLastMinute() {
-            return events.tailMap(ZonedDateTime
+            ZonedDateTime from = ZonedDateTime
                     .now()
-                    .minusMinutes(1));
+                    .minusMinutes(1);
+            requireInMemory(from.toInstant().toEpochMilli());
+            return events.tailMap(from);
         }
 
         ConcurrentNavigableMap<ZonedDateTime, String> getEventsOlderThatOneMinute() {
+            requireInMemory(Long.MIN_VALUE);
             return events.headMap(ZonedDateTime
                     .now()
                     .minusMinutes(1));
         }
 
+        /*
+    The map views above can only show what is in memory. Rather than hand out a view with the spilled
+    part silently missing, refuse; getEventsBetween() reads through to the log instead.
+     */
+        private void requireInMemory(long fromEpochMilli) {
+            if (fromEpochMilli < coldWatermark) {
+                throw new IllegalStateException("Events before " + Instant.ofEpochMilli(coldWatermark)
+                        + " have been spilled to the log, use getEventsBetween()");
+            }
+        }
+
+        /*
+    An immutable copy of a range, for callers that need exact sizes or a stable view.
+    Taking it walks the range on the calling thread, so plain queries go through spliterator() instead.
+     */
+        EventWindowSnapshot snapshot(ZonedDateTime from, ZonedDateTime to) {
+            return new EventWindowSnapshot(events.subMap(from, true, to, false));
+        }
+
+        /*
+    Iterating the live subMap from a parallel stream gives poorly balanced splits and no size estimate,
+    because the skip list can only tell its size by walking it. This spliterator works on the live map
+    without copying: it splits the time range where the per-second counters say half of its events lie,
+    and every part only walks its own subMap once it is traversed.
+     */
+        Spliterator<Event> spliterator(ZonedDateTime from, ZonedDateTime to) {
+            if (from.toInstant().toEpochMilli() < coldWatermark) {
+                // part of the range has been spilled: read it through the log as well
+                return getHistoryBetween(from, to).spliterator();
+            }
+            return new LiveRangeSpliterator(from.toInstant().toEpochMilli(), to.toInstant().toEpochMilli());
+        }
+
+        Stream<Event> getEventsBetween(ZonedDateTime from, ZonedDateTime to, boolean parallel) {
+            return StreamSupport.stream(spliterator(from, to), parallel);
+        }
+
+        /*
+    Evaluates several windows ending now (e.g. 1m, 5m, 15m) in a single pass over the widest one.
+    Every event is fed to the accumulator of each window it falls into, so the result for every window
+    is the same as running the collector over that window alone.
+     */
+        <A, R> Map<Duration, R> queryWindows(Collector<? super Event, A, R> collector, Duration... windows) {
+            return queryWindows(ZonedDateTime.now(), true, collector, windows);
+        }
+
+        <A, R> Map<Duration, R> queryWindows(ZonedDateTime now, boolean parallel,
+                                             Collector<? super Event, A, R> collector, Duration... windows) {
+            if (windows.length == 0) {
+                throw new IllegalArgumentException("At least one window is required");
+            }
+            Duration widest = Arrays.stream(windows).max(Comparator.naturalOrder()).get();
+            long[] starts = Arrays.stream(windows)
+                    .mapToLong(window -> now.minus(window).toInstant().toEpochMilli())
+                    .toArray();
+
+            Supplier<A> supplier = collector.supplier();
+            BiConsumer<A, ? super Event> accumulator = collector.accumulator();
+            BinaryOperator<A> combiner = collector.combiner();
+
+            List<A> containers = getEventsBetween(now.minus(widest), now, parallel).collect(Collector.of(
+                    () -> {
+                        List<A> perWindow = new ArrayList<>(windows.length);
+                        for (int i = 0; i < windows.length; i++) {
+                            perWindow.add(supplier.get());
+                        }
+                        return perWindow;
+                    },
+                    (perWindow, event) -> {
+                        long time = event.getTime().toInstant().toEpochMilli();
+                        for (int i = 0; i < starts.length; i++) {
+                            if (time >= starts[i]) {
+                                accumulator.accept(perWindow.get(i), event);
+                            }
+                        }
+                    },
+                    (left, right) -> {
+                        for (int i = 0; i < left.size(); i++) {
+                            left.set(i, combiner.apply(left.get(i), right.get(i)));
+                        }
+                        return left;
+                    }));
+
+            Map<Duration, R> results = new LinkedHashMap<>();
+            for (int i = 0; i < windows.length; i++) {
+                results.put(windows[i], collector.finisher().apply(containers.get(i)));
+            }
+            return results;
+        }
+
+        private class LiveRangeSpliterator implements Spliterator<Event> {
+            private long from;
+            private final long to;
+            private long estimate = -1;
+            private Iterator<Map.Entry<ZonedDateTime, String>> iterator;
+
+            LiveRangeSpliterator(long from, long to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            private LiveRangeSpliterator(long from, long to, long estimate) {
+                this(from, to);
+                this.estimate = estimate;
+            }
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Event> action) {
+                Iterator<Map.Entry<ZonedDateTime, String>> entries = entries();
+                if (entries.hasNext()) {
+                    Map.Entry<ZonedDateTime, String> entry = entries.next();
+                    action.accept(new Event(entry.getKey(), entry.getValue()));
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer<? super Event> action) {
+                entries().forEachRemaining(entry -> action.accept(new Event(entry.getKey(), entry.getValue())));
+            }
+
+            /*
+    Splits on the first bucket boundary at or past half of the estimated events, so both halves
+    cover disjoint time ranges and hold roughly the same number of events.
+     */
+            @Override
+            public Spliterator<Event> trySplit() {
+                long total = estimateSize();
+                if (iterator != null || total < 2) {
+                    return null;
+                }
+                long seen = 0;
+                for (Map.Entry<Long, AtomicLong> bucket : buckets().entrySet()) {
+                    long bucketStart = bucket.getKey() * BUCKET_MILLIS;
+                    if (seen >= total / 2 && bucketStart > from) {
+                        Spliterator<Event> prefix = new LiveRangeSpliterator(from, bucketStart, seen);
+                        from = bucketStart;
+                        estimate = total - seen;
+                        return prefix;
+                    }
+                    seen += bucket.getValue().get();
+                }
+                return null;
+            }
+
+            @Override
+            public long estimateSize() {
+                if (estimate < 0) {
+                    estimate = 0;
+                    for (AtomicLong count : buckets().values()) {
+                        estimate += count.get();
+                    }
+                }
+                return estimate;
+            }
+
+            @Override
+            public int characteristics() {
+                return ORDERED | NONNULL | CONCURRENT;
+            }
+
+            private NavigableMap<Long, AtomicLong> buckets() {
+                if (from >= to) {
+                    return Collections.emptyNavigableMap();
+                }
+                return bucketCounts.subMap(bucket(from), true, bucket(to - 1), true);
+            }
+
+            private Iterator<Map.Entry<ZonedDateTime, String>> entries() {
+                if (iterator == null) {
+                    iterator = from >= to
+                            ? Collections.emptyIterator()
+                            : events.subMap(time(from), true, time(to), false).entrySet().iterator();
+                }
+                return iterator;
+            }
+
+            private ZonedDateTime time(long epochMilli) {
+                return ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneOffset.UTC);
+            }
+        }
+
+    }
+
+    /*
+    An immutable, array-backed copy of a time range of the event window.
+    Events are kept in time order, so splitting at the middle index also splits on a time boundary.
+     */
+    public static class EventWindowSnapshot {
+        private final ZonedDateTime[] times;
+        private final String[] contents;
+
+        /*
+    Copies the range in a single walk. The range is live, so events added or removed during the walk
+    may or may not be included, but every event that stays in the range throughout is.
+     */
+        EventWindowSnapshot(NavigableMap<ZonedDateTime, String> range) {
+            List<ZonedDateTime> keys = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            range.forEach((time, content) -> {
+                keys.add(time);
+                values.add(content);
+            });
+            this.times = keys.toArray(new ZonedDateTime[0]);
+            this.contents = values.toArray(new String[0]);
+        }
+
+        public int size() {
+            return times.length;
+        }
+
+        public Spliterator<Event> spliterator() {
+            return new EventRangeSpliterator(times, contents, 0, times.length);
+        }
+
+        public Stream<Event> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        public Stream<Event> parallelStream() {
+            return StreamSupport.stream(spliterator(), true);
+        }
+    }
+
+    static class EventRangeSpliterator implements Spliterator<Event> {
+        private final ZonedDateTime[] times;
+        private final String[] contents;
+        private int origin;
+        private final int fence;
+
+        EventRangeSpliterator(ZonedDateTime[] times, String[] contents, int origin, int fence) {
+            this.times = times;
+            this.contents = contents;
+            this.origin = origin;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Event> action) {
+            if (origin < fence) {
+                action.accept(new Event(times[origin], contents[origin]));
+                origin++;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Event> action) {
+            for (int i = origin; i < fence; i++) {
+                action.accept(new Event(times[i], contents[i]));
+            }
+            origin = fence;
+        }
+
+        @Override
+        public Spliterator<Event> trySplit() {
+            int mid = (origin + fence) >>> 1;
+            if (mid <= origin) {
+                return null;
+            }
+            Spliterator<Event> prefix = new EventRangeSpliterator(times, contents, origin, mid);
+            origin = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - origin;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+        }
     }
 
 
@@ -104,6 +495,10 @@ public class ConcurrentSkipListMapDemo {
                 .count();
         assertTrue(eventYoungerThanOneMinute > 0);
 
+        Map<Duration, Long> countsPerWindow = eventWindowSort.queryWindows(Collectors.counting(),
+                Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(15));
+        System.out.println("Events per window: " + countsPerWindow);
+
         try {
             executorService.awaitTermination(500, TimeUnit.MILLISECONDS);
             executorService.shutdown();
@@ -37,7 +37,7 @@ public class DelayedQueueDemo {
         }
         executor.shutdown();
     }
-    private static class DelayObject implements Delayed {
+    static class DelayObject implements Delayed {
         private String data;
         private long startTime;
 
@@ -0,0 +1,148 @@
+package com.code.mordor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+A single append-only, memory-mapped file holding the events of one time partition.
+
+Every record is laid out as [int recordLength][long epochMilli][payload bytes].
+The length is written last, so readers never see a half-written record, and after the process dies
+recovery stops at the first record whose length never made it in; a zero length marks the end of the written data.
+This does not protect against an OS crash or power loss: the kernel may write mapped pages back in any order,
+and nothing is durable before force().
+
+Next to the file we keep a sparse index: one block per INDEX_INTERVAL records, remembering where the block
+starts and the lowest and highest timestamp in it. Events do not have to arrive in time order,
+so a range scan simply skips every block whose [min, max] does not overlap the requested range.
+ */
+class EventLogSegment {
+    static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    static final int INDEX_INTERVAL = 64;
+
+    private final long partitionStart;
+    private final int sequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final List<IndexBlock> index = new CopyOnWriteArrayList<>();
+
+    private int position;
+    private int recordsInLastBlock;
+    /*
+    Written after every append, read before every scan: readers never look past it,
+    and the volatile write/read makes the record bytes and the index updates visible to them.
+     */
+    private volatile int limit;
+
+    private EventLogSegment(Path path, long partitionStart, int sequence, int capacity) throws IOException {
+        this.partitionStart = partitionStart;
+        this.sequence = sequence;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, channel.size()));
+        recover();
+    }
+
+    static EventLogSegment open(Path path, long partitionStart, int sequence, int capacity) throws IOException {
+        return new EventLogSegment(path, partitionStart, sequence, capacity);
+    }
+
+    long getPartitionStart() {
+        return partitionStart;
+    }
+
+    int getSequence() {
+        return sequence;
+    }
+
+    /*
+    Returns false when the record does not fit, so the log can roll over to a new segment.
+     */
+    synchronized boolean append(long epochMilli, byte[] payload) {
+        int recordLength = HEADER_BYTES + payload.length;
+        if (recordLength > buffer.capacity() - position) {
+            return false;
+        }
+        buffer.putLong(position + Integer.BYTES, epochMilli);
+        buffer.put(position + HEADER_BYTES, payload);
+        buffer.putInt(position, recordLength);
+        index(position, epochMilli);
+        position += recordLength;
+        limit = position;
+        return true;
+    }
+
+    void scan(long from, long to, EventRecordVisitor visitor) {
+        int end = limit;
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        for (int i = 0; i < index.size(); i++) {
+            IndexBlock block = index.get(i);
+            if (block.offset >= end) {
+                break;
+            }
+            if (block.maxEpochMilli < from || block.minEpochMilli >= to) {
+                continue;
+            }
+            int blockEnd = i + 1 < index.size() ? Math.min(index.get(i + 1).offset, end) : end;
+            for (int offset = block.offset; offset < blockEnd; ) {
+                int recordLength = view.getInt(offset);
+                long epochMilli = view.getLong(offset + Integer.BYTES);
+                if (epochMilli >= from && epochMilli < to) {
+                    visitor.visit(epochMilli, view.slice(offset + HEADER_BYTES, recordLength - HEADER_BYTES));
+                }
+                offset += recordLength;
+            }
+        }
+    }
+
+    synchronized void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void index(int offset, long epochMilli) {
+        if (index.isEmpty() || recordsInLastBlock == INDEX_INTERVAL) {
+            index.add(new IndexBlock(offset, epochMilli));
+            recordsInLastBlock = 1;
+        } else {
+            IndexBlock block = index.get(index.size() - 1);
+            block.minEpochMilli = Math.min(block.minEpochMilli, epochMilli);
+            block.maxEpochMilli = Math.max(block.maxEpochMilli, epochMilli);
+            recordsInLastBlock++;
+        }
+    }
+
+    private void recover() {
+        while (buffer.capacity() - position >= HEADER_BYTES) {
+            int recordLength = buffer.getInt(position);
+            if (recordLength < HEADER_BYTES || recordLength > buffer.capacity() - position) {
+                break;
+            }
+            index(position, buffer.getLong(position + Integer.BYTES));
+            position += recordLength;
+        }
+        limit = position;
+    }
+
+    private static class IndexBlock {
+        final int offset;
+        volatile long minEpochMilli;
+        volatile long maxEpochMilli;
+
+        IndexBlock(int offset, long epochMilli) {
+            this.offset = offset;
+            this.minEpochMilli = epochMilli;
+            this.maxEpochMilli = epochMilli;
+        }
+    }
+}
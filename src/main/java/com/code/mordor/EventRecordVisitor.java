@@ -0,0 +1,14 @@
+package com.code.mordor;
+
+import java.nio.ByteBuffer;
+
+/*
+Callback used when scanning the mapped event log.
+The payload is a read-only view straight into the mapped segment, so nothing is copied or decoded
+unless the visitor decides to. It is only valid for the duration of the call.
+ */
+@FunctionalInterface
+public interface EventRecordVisitor {
+
+    void visit(long epochMilli, ByteBuffer payload);
+}
@@ -0,0 +1,225 @@
+package com.code.mordor;
+
+import com.code.mordor.ConcurrentSkipListMapDemo.Event;
+import com.code.mordor.ConcurrentSkipListMapDemo.EventWindowSort;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/*
+Append-only event history that lives outside the heap.
+
+Events are written to memory-mapped segment files, one or more per time partition (one hour by default),
+named <partitionStartMilli>-<sequence>.seg. When a segment is full the log rolls over to the next sequence
+of the same partition. Reopening a directory picks up every segment that is already there,
+which is what makes replaying history on startup possible.
+ */
+public class MappedEventLog implements Closeable {
+    static final Duration DEFAULT_PARTITION = Duration.ofHours(1);
+    static final int DEFAULT_SEGMENT_CAPACITY = 64 * 1024 * 1024;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final long partitionMillis;
+    private final int segmentCapacity;
+    private final ZoneId zone;
+    private final ConcurrentSkipListMap<Long, List<EventLogSegment>> partitions = new ConcurrentSkipListMap<>();
+
+    private MappedEventLog(Path directory, Duration partition, int segmentCapacity, ZoneId zone) {
+        this.directory = directory;
+        this.partitionMillis = partition.toMillis();
+        this.segmentCapacity = segmentCapacity;
+        this.zone = zone;
+    }
+
+    public static MappedEventLog open(Path directory) throws IOException {
+        return open(directory, DEFAULT_PARTITION, DEFAULT_SEGMENT_CAPACITY, ZoneId.systemDefault());
+    }
+
+    public static MappedEventLog open(Path directory, Duration partition, int segmentCapacity, ZoneId zone)
+            throws IOException {
+        if (partition.toMillis() <= 0) {
+            throw new IllegalArgumentException("Partition must be at least one millisecond");
+        }
+        if (segmentCapacity <= EventLogSegment.HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment capacity too small: " + segmentCapacity);
+        }
+        Files.createDirectories(directory);
+        MappedEventLog log = new MappedEventLog(directory, partition, segmentCapacity, zone);
+        log.loadSegments();
+        return log;
+    }
+
+    public void append(Event event) {
+        append(event.getTime().toInstant().toEpochMilli(), event.getContent().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void append(long epochMilli, byte[] payload) {
+        if (EventLogSegment.HEADER_BYTES + payload.length > segmentCapacity) {
+            throw new IllegalArgumentException("Event of " + payload.length + " bytes does not fit in a segment");
+        }
+        List<EventLogSegment> segments = partitions.computeIfAbsent(
+                partitionStart(epochMilli), key -> new CopyOnWriteArrayList<>());
+        while (true) {
+            EventLogSegment active = activeSegment(segments, partitionStart(epochMilli));
+            if (active.append(epochMilli, payload)) {
+                return;
+            }
+            synchronized (segments) {
+                if (segments.get(segments.size() - 1) == active) {
+                    segments.add(newSegment(active.getPartitionStart(), active.getSequence() + 1));
+                }
+            }
+        }
+    }
+
+    /*
+    Visits every event in [from, to) without copying its payload.
+    Partitions are visited in time order; inside a partition, events come in the order they were appended.
+     */
+    public void scan(ZonedDateTime from, ZonedDateTime to, EventRecordVisitor visitor) {
+        long fromMilli = from.toInstant().toEpochMilli();
+        long toMilli = to.toInstant().toEpochMilli();
+        for (List<EventLogSegment> segments : overlapping(fromMilli, toMilli)) {
+            for (EventLogSegment segment : segments) {
+                segment.scan(fromMilli, toMilli, visitor);
+            }
+        }
+    }
+
+    /*
+    Events in [from, to) in time order. Each partition is decoded into a sorted map with later appends
+    winning, so just like the in-memory window only the last event for a given millisecond is kept.
+    Partitions are decoded one at a time as the stream reaches them.
+     */
+    public Stream<Event> stream(ZonedDateTime from, ZonedDateTime to) {
+        long fromMilli = from.toInstant().toEpochMilli();
+        long toMilli = to.toInstant().toEpochMilli();
+        List<List<EventLogSegment>> overlapping = new ArrayList<>();
+        overlapping(fromMilli, toMilli).forEach(overlapping::add);
+        return overlapping.stream()
+                .flatMap(segments -> decode(segments, fromMilli, toMilli).entrySet().stream())
+                .map(entry -> new Event(entry.getKey(), entry.getValue()));
+    }
+
+    /*
+    Rebuilds an EventWindowSort holding every logged event from from onward.
+    Partitions are decoded in parallel and merged, and the skip list is then built from the sorted result
+    in one go instead of inserting the events one by one. Anything older than from stays on disk only.
+     */
+    public EventWindowSort replay(ZonedDateTime from) {
+        long fromMilli = from.toInstant().toEpochMilli();
+        List<List<EventLogSegment>> overlapping = new ArrayList<>();
+        overlapping(fromMilli, Long.MAX_VALUE).forEach(overlapping::add);
+
+        SortedMap<ZonedDateTime, String> events = overlapping
+                .parallelStream()
+                .map(segments -> decode(segments, fromMilli, Long.MAX_VALUE))
+                .reduce((left, right) -> {
+                    left.putAll(right);
+                    return left;
+                })
+                .orElseGet(() -> new TreeMap<>(EventWindowSort.BY_EPOCH_MILLI));
+        return new EventWindowSort(this, events, from);
+    }
+
+    public void force() {
+        partitions.values().forEach(segments -> segments.forEach(EventLogSegment::force));
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (List<EventLogSegment> segments : partitions.values()) {
+            for (EventLogSegment segment : segments) {
+                segment.close();
+            }
+        }
+    }
+
+    /*
+    Segments of one partition, in sequence order, so a later event with the same timestamp replaces the earlier one.
+     */
+    private SortedMap<ZonedDateTime, String> decode(List<EventLogSegment> segments, long fromMilli, long toMilli) {
+        SortedMap<ZonedDateTime, String> decoded = new TreeMap<>(EventWindowSort.BY_EPOCH_MILLI);
+        for (EventLogSegment segment : segments) {
+            segment.scan(fromMilli, toMilli, (epochMilli, payload) -> {
+                Event event = toEvent(epochMilli, payload);
+                decoded.put(event.getTime(), event.getContent());
+            });
+        }
+        return decoded;
+    }
+
+    private Event toEvent(long epochMilli, ByteBuffer payload) {
+        return new Event(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), zone),
+                StandardCharsets.UTF_8.decode(payload).toString());
+    }
+
+    private Iterable<List<EventLogSegment>> overlapping(long fromMilli, long toMilli) {
+        if (fromMilli >= toMilli) {
+            return new ArrayList<>();
+        }
+        return partitions.subMap(partitionStart(fromMilli), true, toMilli, false).values();
+    }
+
+    private long partitionStart(long epochMilli) {
+        return epochMilli - Math.floorMod(epochMilli, partitionMillis);
+    }
+
+    private EventLogSegment activeSegment(List<EventLogSegment> segments, long partitionStart) {
+        if (segments.isEmpty()) {
+            synchronized (segments) {
+                if (segments.isEmpty()) {
+                    segments.add(newSegment(partitionStart, 0));
+                }
+            }
+        }
+        return segments.get(segments.size() - 1);
+    }
+
+    private EventLogSegment newSegment(long partitionStart, int sequence) {
+        Path path = directory.resolve(partitionStart + "-" + sequence + SEGMENT_SUFFIX);
+        try {
+            return EventLogSegment.open(path, partitionStart, sequence, segmentCapacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void loadSegments() throws IOException {
+        Map<Long, TreeMap<Integer, Path>> found = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).forEach(file -> {
+                String name = file.getFileName().toString();
+                String[] parts = name.substring(0, name.length() - SEGMENT_SUFFIX.length()).split("-(?=[^-]*$)");
+                found.computeIfAbsent(Long.parseLong(parts[0]), key -> new TreeMap<>())
+                        .put(Integer.parseInt(parts[1]), file);
+            });
+        }
+        for (Map.Entry<Long, TreeMap<Integer, Path>> partition : found.entrySet()) {
+            List<EventLogSegment> segments = new CopyOnWriteArrayList<>();
+            for (Map.Entry<Integer, Path> segment : partition.getValue().entrySet()) {
+                segments.add(EventLogSegment.open(segment.getValue(), partition.getKey(), segment.getKey(), segmentCapacity));
+            }
+            partitions.put(partition.getKey(), segments);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.code.mordor.pipeline;
+
+import com.code.mordor.asyncmethod.ThreadAsyncExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class App {
+
+    private static final org.slf4j.Logger LOGGER = org.slf4j.LoggerFactory.getLogger(App.class);
+
+    public static void main(String[] args) throws Exception {
+        AtomicInteger delivered = new AtomicInteger();
+
+        // delayed items feed a backpressured hand-off, which feeds async processing on its own threads
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .stage("delay", Stage.of(i -> i), StageOptions.defaults()
+                        .delay(Duration.ofMillis(100))
+                        .capacity(50))
+                .stage("transfer", Stage.of(i -> "item-" + i), StageOptions.defaults()
+                        .queue(QueueType.TRANSFER)
+                        .parallelism(2))
+                .stage("async", Stage.<String, String>of(App::slowUpperCase), StageOptions.defaults()
+                        .async(new ThreadAsyncExecutor())
+                        .parallelism(4)
+                        .batchSize(5)
+                        .capacity(20))
+                .sink(item -> delivered.incrementAndGet());
+
+        for (int i = 0; i < 200; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.complete();
+
+        while (!pipeline.awaitCompletion(1, TimeUnit.SECONDS)) {
+            pipeline.metrics().forEach(metrics -> log(metrics.toString()));
+        }
+
+        pipeline.metrics().forEach(metrics -> log(metrics.toString()));
+        log("Delivered " + delivered.get() + " items, bottleneck was " + pipeline.bottleneck().getName()
+                + ", source blocked for " + pipeline.getSourceBlockedMillis() + " ms");
+    }
+
+    private static String slowUpperCase(String value) {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value.toUpperCase();
+    }
+
+    private static void log(String msg) {
+        LOGGER.info(msg);
+    }
+}
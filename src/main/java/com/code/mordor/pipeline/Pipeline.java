@@ -0,0 +1,143 @@
+package com.code.mordor.pipeline;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/*
+Chains stages like the ones the demos in this project show on their own: a delay, a hand-off, async processing.
+Each stage reads from its own queue and writes into the next stage's queue, so when a stage cannot keep up
+the stage before it blocks, then the one before that, and finally submit() blocks the source.
+ */
+public class Pipeline<I> {
+    private final List<PipelineStage<?, ?>> stages;
+    private final StageQueue<I> source;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final AtomicLong sourceBlockedNanos = new AtomicLong();
+    private volatile boolean completed;
+
+    private Pipeline(List<PipelineStage<?, ?>> stages, StageQueue<I> source) {
+        this.stages = stages;
+        this.source = source;
+    }
+
+    public static <I> Builder<I, I> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Hands an item to the first stage. Blocks while the pipeline is backed up.
+     *
+     * @param item item to process
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    public void submit(I item) throws InterruptedException {
+        if (completed) {
+            throw new IllegalStateException("Pipeline already completed");
+        }
+        long start = System.nanoTime();
+        source.put(item);
+        sourceBlockedNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Signals that no more items will be submitted. Stages finish once they have drained their queues.
+     */
+    public void complete() {
+        completed = true;
+        stages.get(0).upstreamFinished();
+    }
+
+    /**
+     * Waits for every submitted item to leave the last stage.
+     *
+     * @return false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    public void shutdownNow() {
+        completed = true;
+        stages.forEach(PipelineStage::shutdownNow);
+    }
+
+    public List<StageMetrics> metrics() {
+        return stages.stream().map(PipelineStage::metrics).collect(Collectors.toList());
+    }
+
+    /*
+    The stage whose workers spend the largest share of their time processing.
+     */
+    public StageMetrics bottleneck() {
+        return metrics().stream().max(Comparator.comparingDouble(StageMetrics::getBusyRatio)).get();
+    }
+
+    /*
+    Time submit() spent waiting for room: how much backpressure reached the source.
+     */
+    public long getSourceBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(sourceBlockedNanos.get());
+    }
+
+    public static class Builder<I, O> {
+        private final List<PipelineStage<?, ?>> stages;
+        private final StageQueue<I> source;
+        private final PipelineStage<?, O> last;
+
+        private Builder() {
+            this(new ArrayList<>(), null, null);
+        }
+
+        private Builder(List<PipelineStage<?, ?>> stages, StageQueue<I> source, PipelineStage<?, O> last) {
+            this.stages = stages;
+            this.source = source;
+            this.last = last;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <N> Builder<I, N> stage(String name, Stage<O, N> stage, StageOptions options) {
+            PipelineStage<O, N> next = new PipelineStage<>(name, stage, options);
+            stages.add(next);
+            if (last == null) {
+                // the first stage consumes what is submitted, so O is I here
+                return new Builder<>(stages, (StageQueue<I>) (StageQueue<?>) next.getQueue(), next);
+            }
+            last.connect(next.getQueue()::offer);
+            return new Builder<>(stages, source, next);
+        }
+
+        /**
+         * Starts the pipeline, handing every item that leaves the last stage to the sink.
+         *
+         * @param sink called from the last stage's workers
+         * @return running pipeline
+         */
+        public Pipeline<I> sink(Consumer<? super O> sink) {
+            if (last == null) {
+                throw new IllegalStateException("Pipeline needs at least one stage");
+            }
+            last.connect((item, timeout, unit) -> {
+                sink.accept(item);
+                return true;
+            });
+            Pipeline<I> pipeline = new Pipeline<>(stages, source);
+            for (int i = 0; i < stages.size(); i++) {
+                PipelineStage<?, ?> stage = stages.get(i);
+                stage.start(i + 1 < stages.size() ? stages.get(i + 1)::upstreamFinished : pipeline.finished::countDown);
+            }
+            return pipeline;
+        }
+
+        public Pipeline<I> build() {
+            return sink(item -> {
+            });
+        }
+    }
+}
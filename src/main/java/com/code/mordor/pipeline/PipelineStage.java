@@ -0,0 +1,231 @@
+package com.code.mordor.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+The running form of a stage: an input queue, the workers draining it and the counters behind StageMetrics.
+
+A stage is finished once everything upstream of it has finished and its own queue is empty.
+Its last worker to exit then tells the next stage, so completion ripples down the pipeline
+behind the last item.
+ */
+class PipelineStage<I, O> {
+    private static final org.slf4j.Logger LOGGER = org.slf4j.LoggerFactory.getLogger(PipelineStage.class);
+    private static final long POLL_MILLIS = 50;
+
+    interface Downstream<T> {
+        boolean offer(T item, long timeout, TimeUnit unit) throws InterruptedException;
+    }
+
+    private final String name;
+    private final Stage<I, O> stage;
+    private final StageOptions options;
+    private final StageQueue<I> queue;
+    private final Semaphore inFlight;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    private Downstream<O> downstream;
+    private Runnable onFinished;
+    private ExecutorService workers;
+    private volatile long startNanos;
+    private volatile boolean upstreamDone;
+    private volatile boolean stopped;
+
+    PipelineStage(String name, Stage<I, O> stage, StageOptions options) {
+        this.name = name;
+        this.stage = stage;
+        this.options = options;
+        this.queue = StageQueue.create(options);
+        this.inFlight = new Semaphore(options.getParallelism());
+    }
+
+    StageQueue<I> getQueue() {
+        return queue;
+    }
+
+    void connect(Downstream<O> downstream) {
+        this.downstream = downstream;
+    }
+
+    /*
+    An async stage has a single dispatcher; its parallelism bounds the batches running on the executor instead.
+     */
+    void start(Runnable onFinished) {
+        this.onFinished = onFinished;
+        int threads = options.getExecutor() == null ? options.getParallelism() : 1;
+        AtomicInteger idx = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, task -> new Thread(task, name + "-" + idx.incrementAndGet()));
+        activeWorkers.set(threads);
+        startNanos = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            workers.execute(this::work);
+        }
+        workers.shutdown();
+    }
+
+    void upstreamFinished() {
+        upstreamDone = true;
+    }
+
+    /*
+    Interrupting our own workers is not enough: async callbacks emit from the executor's threads,
+    so emit() also watches the stopped flag and gives up on items it cannot hand on.
+     */
+    void shutdownNow() {
+        stopped = true;
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    StageMetrics metrics() {
+        double elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        double workerNanos = elapsedNanos * options.getParallelism();
+        return new StageMetrics(name, processed.get(), failed.get(), queue.size(),
+                processed.get() / (elapsedNanos / TimeUnit.SECONDS.toNanos(1)),
+                busyNanos.get() / workerNanos, blockedNanos.get() / workerNanos);
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                List<I> batch = takeBatch();
+                if (batch.isEmpty()) {
+                    if (upstreamDone && queue.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                if (options.getExecutor() == null) {
+                    process(batch);
+                } else {
+                    dispatch(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (activeWorkers.decrementAndGet() == 0) {
+                finish();
+            }
+        }
+    }
+
+    /*
+    Waits for the batches still running on the executor. An interrupted stage was shut down
+    and does not report itself finished.
+     */
+    private void finish() {
+        try {
+            inFlight.acquire(options.getParallelism());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        onFinished.run();
+    }
+
+    private List<I> takeBatch() throws InterruptedException {
+        I first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        List<I> batch = new ArrayList<>(options.getBatchSize());
+        batch.add(first);
+        while (batch.size() < options.getBatchSize()) {
+            I next = queue.poll(0, TimeUnit.MILLISECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void process(List<I> batch) throws InterruptedException {
+        List<O> out;
+        long start = System.nanoTime();
+        try {
+            out = stage.apply(batch);
+        } catch (Exception e) {
+            failed.addAndGet(batch.size());
+            LOGGER.warn("Stage " + name + " failed on a batch of " + batch.size(), e);
+            return;
+        } finally {
+            busyNanos.addAndGet(System.nanoTime() - start);
+        }
+        processed.addAndGet(batch.size());
+        emit(out);
+    }
+
+    /*
+    The callback pushes the results downstream from the executor's thread and only then frees the slot,
+    so a slow next stage keeps slots taken and stalls the dispatcher, which in turn lets our queue fill up.
+    An executor may call the callback a second time if the first call throws; only the first call counts.
+     */
+    private void dispatch(List<I> batch) throws InterruptedException {
+        inFlight.acquire();
+        AtomicBoolean completed = new AtomicBoolean();
+        options.getExecutor().startProcess(() -> {
+            long start = System.nanoTime();
+            try {
+                return stage.apply(batch);
+            } finally {
+                busyNanos.addAndGet(System.nanoTime() - start);
+            }
+        }, (out, ex) -> {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (ex.isPresent()) {
+                    failed.addAndGet(batch.size());
+                    LOGGER.warn("Stage " + name + " failed on a batch of " + batch.size(), ex.get());
+                } else {
+                    processed.addAndGet(batch.size());
+                    emit(out);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /*
+    An item the next stage or the sink throws on is counted as failed; the rest of the batch still goes through.
+    Once the stage is stopped, items that are still waiting for room downstream are dropped.
+     */
+    private void emit(List<O> out) throws InterruptedException {
+        if (out == null) {
+            return;
+        }
+        for (O item : out) {
+            long start = System.nanoTime();
+            try {
+                while (!downstream.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (stopped) {
+                        return;
+                    }
+                }
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                LOGGER.warn("Stage " + name + " could not hand on an item", e);
+            } finally {
+                blockedNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.code.mordor.pipeline;
+
+/*
+How items are handed to a stage. Every type blocks the upstream stage once the stage falls behind,
+which is how backpressure travels from the slowest stage back to the source.
+ */
+public enum QueueType {
+    /*
+    ArrayBlockingQueue: upstream blocks once capacity items are waiting.
+     */
+    BOUNDED,
+    /*
+    LinkedTransferQueue: upstream blocks in transfer() until a worker has taken the item, as in TransferQueueDemo.
+     */
+    TRANSFER,
+    /*
+    SynchronousQueue: a direct hand-off with no buffering at all, as in SynchronousQueueDemo.
+     */
+    SYNCHRONOUS,
+    /*
+    DelayQueue: an item can only be taken once its delay has expired, as in DelayedQueueDemo.
+    The queue itself is unbounded, so capacity is enforced with a semaphore.
+     */
+    DELAYED
+}
@@ -0,0 +1,33 @@
+package com.code.mordor.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+public interface Stage<I, O> {
+
+    /**
+     * Processes a batch of items taken from the stage's input queue.
+     *
+     * @param batch between one and batchSize items, in the order they were taken
+     * @return items to pass to the next stage, possibly none
+     * @throws Exception if processing fails, the batch is counted as failed and dropped
+     */
+    List<O> apply(List<I> batch) throws Exception;
+
+    /**
+     * Creates a stage that maps every item of a batch on its own.
+     *
+     * @param function mapping applied to each item
+     * @return new stage
+     */
+    static <I, O> Stage<I, O> of(Function<? super I, ? extends O> function) {
+        return batch -> {
+            List<O> out = new ArrayList<>(batch.size());
+            for (I item : batch) {
+                out.add(function.apply(item));
+            }
+            return out;
+        };
+    }
+}
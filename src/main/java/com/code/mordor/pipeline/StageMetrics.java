@@ -0,0 +1,63 @@
+package com.code.mordor.pipeline;
+
+/*
+A point-in-time view of one stage.
+
+busyRatio is the share of the stage's worker time spent processing, and blockedRatio the share spent waiting
+for the next stage to accept output. The bottleneck is the stage that is busy rather than blocked:
+everything upstream of it backs up (high queue depth, high blockedRatio), everything downstream of it starves.
+ */
+public class StageMetrics {
+    private final String name;
+    private final long processed;
+    private final long failed;
+    private final int queueDepth;
+    private final double throughputPerSecond;
+    private final double busyRatio;
+    private final double blockedRatio;
+
+    StageMetrics(String name, long processed, long failed, int queueDepth,
+                 double throughputPerSecond, double busyRatio, double blockedRatio) {
+        this.name = name;
+        this.processed = processed;
+        this.failed = failed;
+        this.queueDepth = queueDepth;
+        this.throughputPerSecond = throughputPerSecond;
+        this.busyRatio = busyRatio;
+        this.blockedRatio = blockedRatio;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public double getThroughputPerSecond() {
+        return throughputPerSecond;
+    }
+
+    public double getBusyRatio() {
+        return busyRatio;
+    }
+
+    public double getBlockedRatio() {
+        return blockedRatio;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: processed=%d failed=%d queueDepth=%d throughput=%.1f/s busy=%.0f%% blocked=%.0f%%",
+                name, processed, failed, queueDepth, throughputPerSecond, busyRatio * 100, blockedRatio * 100);
+    }
+}
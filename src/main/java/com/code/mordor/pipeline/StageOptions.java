@@ -0,0 +1,94 @@
+package com.code.mordor.pipeline;
+
+import com.code.mordor.asyncmethod.AsyncExecutor;
+
+import java.time.Duration;
+
+public class StageOptions {
+    private int parallelism = 1;
+    private QueueType queueType = QueueType.BOUNDED;
+    private int capacity = 1024;
+    private int batchSize = 1;
+    private Duration delay = Duration.ZERO;
+    private AsyncExecutor executor;
+
+    public static StageOptions defaults() {
+        return new StageOptions();
+    }
+
+    /*
+    Number of worker threads. For an async stage, the number of batches in flight on the executor.
+     */
+    public StageOptions parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public StageOptions queue(QueueType queueType) {
+        this.queueType = queueType;
+        return this;
+    }
+
+    /*
+    Items that may wait in a BOUNDED or DELAYED queue before upstream blocks.
+     */
+    public StageOptions capacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        return this;
+    }
+
+    public StageOptions batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /*
+    How long every item waits in a DELAYED queue before it can be taken.
+     */
+    public StageOptions delay(Duration delay) {
+        this.delay = delay;
+        this.queueType = QueueType.DELAYED;
+        return this;
+    }
+
+    /*
+    Runs each batch through the given executor instead of on the stage's own workers.
+     */
+    public StageOptions async(AsyncExecutor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public QueueType getQueueType() {
+        return queueType;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Duration getDelay() {
+        return delay;
+    }
+
+    public AsyncExecutor getExecutor() {
+        return executor;
+    }
+}
@@ -0,0 +1,153 @@
+package com.code.mordor.pipeline;
+
+import com.google.common.primitives.Ints;
+
+import java.util.concurrent.*;
+
+abstract class StageQueue<T> {
+
+    abstract void put(T item) throws InterruptedException;
+
+    /*
+    Like put(), but gives up after the timeout, so a blocked hand-off can notice a shutdown.
+     */
+    abstract boolean offer(T item, long timeout, TimeUnit unit) throws InterruptedException;
+
+    abstract T poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    abstract int size();
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    static <T> StageQueue<T> create(StageOptions options) {
+        switch (options.getQueueType()) {
+            case BOUNDED:
+                return new Blocking<>(new ArrayBlockingQueue<>(options.getCapacity()));
+            case TRANSFER:
+                return new Transfer<>();
+            case SYNCHRONOUS:
+                return new Blocking<>(new SynchronousQueue<>());
+            case DELAYED:
+                return new Delaying<>(options.getCapacity(), options.getDelay().toMillis());
+            default:
+                throw new IllegalArgumentException("Unknown queue type " + options.getQueueType());
+        }
+    }
+
+    private static class Blocking<T> extends StageQueue<T> {
+        private final BlockingQueue<T> queue;
+
+        Blocking(BlockingQueue<T> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        void put(T item) throws InterruptedException {
+            queue.put(item);
+        }
+
+        @Override
+        boolean offer(T item, long timeout, TimeUnit unit) throws InterruptedException {
+            return queue.offer(item, timeout, unit);
+        }
+
+        @Override
+        T poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return queue.poll(timeout, unit);
+        }
+
+        @Override
+        int size() {
+            return queue.size();
+        }
+    }
+
+    private static class Transfer<T> extends StageQueue<T> {
+        private final TransferQueue<T> queue = new LinkedTransferQueue<>();
+
+        @Override
+        void put(T item) throws InterruptedException {
+            queue.transfer(item);
+        }
+
+        @Override
+        boolean offer(T item, long timeout, TimeUnit unit) throws InterruptedException {
+            return queue.tryTransfer(item, timeout, unit);
+        }
+
+        @Override
+        T poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return queue.poll(timeout, unit);
+        }
+
+        @Override
+        int size() {
+            return queue.size();
+        }
+    }
+
+    private static class Delaying<T> extends StageQueue<T> {
+        private final DelayQueue<DelayedItem<T>> queue = new DelayQueue<>();
+        private final Semaphore permits;
+        private final long delayMillis;
+
+        Delaying(int capacity, long delayMillis) {
+            this.permits = new Semaphore(capacity);
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        void put(T item) throws InterruptedException {
+            permits.acquire();
+            queue.put(new DelayedItem<>(item, delayMillis));
+        }
+
+        @Override
+        boolean offer(T item, long timeout, TimeUnit unit) throws InterruptedException {
+            if (!permits.tryAcquire(timeout, unit)) {
+                return false;
+            }
+            queue.put(new DelayedItem<>(item, delayMillis));
+            return true;
+        }
+
+        @Override
+        T poll(long timeout, TimeUnit unit) throws InterruptedException {
+            DelayedItem<T> delayed = queue.poll(timeout, unit);
+            if (delayed == null) {
+                return null;
+            }
+            permits.release();
+            return delayed.item;
+        }
+
+        @Override
+        int size() {
+            return queue.size();
+        }
+    }
+
+    private static class DelayedItem<T> implements Delayed {
+        private final T item;
+        private final long startTime;
+
+        DelayedItem(T item, long delayInMilliseconds) {
+            this.item = item;
+            this.startTime = System.currentTimeMillis() + delayInMilliseconds;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            long diff = startTime - System.currentTimeMillis();
+            return unit.convert(diff, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Ints.saturatedCast(
+                    this.startTime - ((DelayedItem<?>) o).startTime);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.code.mordor;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentSkipListMapDemoTest {
+
+    @Test
+    public void whenSplittingLiveRange_thenHalvesAreBalancedAndSplitOnTime() {
+        // given
+        ZonedDateTime now = ZonedDateTime.now();
+        ConcurrentSkipListMapDemo.EventWindowSort eventWindowSort = new ConcurrentSkipListMapDemo.EventWindowSort();
+        IntStream.range(0, 1000).forEach(i -> eventWindowSort.acceptEvent(
+                new ConcurrentSkipListMapDemo.Event(now.minusSeconds(i), "e" + i)));
+
+        // when
+        Spliterator<ConcurrentSkipListMapDemo.Event> suffix = eventWindowSort.spliterator(now.minusSeconds(999), now.plusSeconds(1));
+        Spliterator<ConcurrentSkipListMapDemo.Event> prefix = suffix.trySplit();
+
+        // then
+        assertNotNull(prefix);
+        assertEquals(1000, prefix.estimateSize() + suffix.estimateSize());
+        assertTrue(Math.abs(prefix.estimateSize() - suffix.estimateSize()) <= 2);
+
+        ZonedDateTime[] lastOfPrefix = new ZonedDateTime[1];
+        long[] counts = new long[2];
+        prefix.forEachRemaining(event -> {
+            lastOfPrefix[0] = event.getTime();
+            counts[0]++;
+        });
+        suffix.forEachRemaining(event -> {
+            assertTrue(event.getTime().isAfter(lastOfPrefix[0]));
+            counts[1]++;
+        });
+        assertEquals(1000, counts[0] + counts[1]);
+        assertEquals(1000, eventWindowSort.getEventsBetween(now.minusSeconds(999), now.plusSeconds(1), true).count());
+    }
+
+    @Test
+    public void whenSplittingSnapshot_thenHalvesAreExactlySized() {
+        // given
+        ZonedDateTime now = ZonedDateTime.now();
+        ConcurrentSkipListMapDemo.EventWindowSort eventWindowSort = new ConcurrentSkipListMapDemo.EventWindowSort();
+        IntStream.range(0, 1000).forEach(i -> eventWindowSort.acceptEvent(
+                new ConcurrentSkipListMapDemo.Event(now.minusSeconds(i), "e" + i)));
+
+        // when
+        Spliterator<ConcurrentSkipListMapDemo.Event> suffix = eventWindowSort.snapshot(now.minusSeconds(999), now.plusSeconds(1)).spliterator();
+        Spliterator<ConcurrentSkipListMapDemo.Event> prefix = suffix.trySplit();
+
+        // then
+        assertNotNull(prefix);
+        assertEquals(500, prefix.estimateSize());
+        assertEquals(500, suffix.estimateSize());
+        assertTrue(suffix.hasCharacteristics(Spliterator.SUBSIZED));
+    }
+
+    @Test
+    public void whenQueryingSeveralWindows_thenMatchesSeparateQueries() {
+        // given
+        ZonedDateTime now = ZonedDateTime.now();
+        ConcurrentSkipListMapDemo.EventWindowSort eventWindowSort = new ConcurrentSkipListMapDemo.EventWindowSort();
+        IntStream.range(0, 20_000).forEach(i -> eventWindowSort.acceptEvent(
+                new ConcurrentSkipListMapDemo.Event(now.minusNanos(i * 60_000_000L), "e" + i)));
+
+        // when
+        Map<Duration, Long> counts = eventWindowSort.queryWindows(now, true, Collectors.counting(),
+                Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(15));
+
+        // then
+        for (Duration window : counts.keySet()) {
+            long expected = eventWindowSort.getEventsBetween(now.minus(window), now, false).count();
+            assertEquals(expected, counts.get(window).longValue());
+        }
+        assertEquals(1000, counts.get(Duration.ofMinutes(1)).longValue());
+        assertEquals(15000, counts.get(Duration.ofMinutes(15)).longValue());
+    }
+
+    @Test
+    public void whenSnapshottingWhileIngesting_thenNoExistingEventIsDropped() throws InterruptedException {
+        for (int run = 0; run < 20; run++) {
+            // given
+            ZonedDateTime start = ZonedDateTime.now();
+            ConcurrentSkipListMapDemo.EventWindowSort eventWindowSort = new ConcurrentSkipListMapDemo.EventWindowSort();
+            IntStream.range(0, 10_000).forEach(i -> eventWindowSort.acceptEvent(
+                    new ConcurrentSkipListMapDemo.Event(start.plusNanos(i * 2_000_000L), "existing")));
+            Thread producer = new Thread(() -> IntStream.range(0, 10_000).forEach(i -> eventWindowSort.acceptEvent(
+                    new ConcurrentSkipListMapDemo.Event(start.plusNanos(i * 2_000_000L + 1_000_000L), "new"))));
+
+            // when
+            producer.start();
+            ConcurrentSkipListMapDemo.EventWindowSnapshot snapshot = eventWindowSort.snapshot(start, start.plusSeconds(20));
+            producer.join();
+
+            // then
+            assertEquals(10_000, snapshot.stream().filter(event -> event.getContent().equals("existing")).count());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.code.mordor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedEventLogTest {
+
+    @TempDir
+    Path directory;
+
+    /*
+    A fixed "now" on a minute boundary, so the number of one-minute partitions never depends on when the test runs.
+     */
+    private static ZonedDateTime alignedNow() {
+        long minute = Duration.ofMinutes(1).toMillis();
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(System.currentTimeMillis() / minute * minute), ZoneId.of("UTC"));
+    }
+
+    @Test
+    public void whenSpillingOldEvents_thenHistoryStillSpansHotAndCold() throws Exception {
+        // given
+        ZonedDateTime now = alignedNow();
+        try (MappedEventLog log = MappedEventLog.open(directory, Duration.ofMinutes(1), 4096, now.getZone())) {
+            ConcurrentSkipListMapDemo.EventWindowSort eventWindowSort = new ConcurrentSkipListMapDemo.EventWindowSort(log);
+            IntStream.range(0, 600).forEach(i -> eventWindowSort.acceptEvent(
+                    new ConcurrentSkipListMapDemo.Event(now.minusSeconds(i), "e" + i)));
+
+            // when
+            eventWindowSort.spillOlderThan(now.minusMinutes(1));
+
+            // then
+            assertEquals(600, eventWindowSort.getEventsBetween(now.minusMinutes(10), now.plusSeconds(1), true).count());
+            Map<Duration, Long> counts = eventWindowSort.queryWindows(now.plusNanos(1_000_000), true, Collectors.counting(),
+                    Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(15));
+            assertEquals(60, counts.get(Duration.ofMinutes(1)).longValue());
+            assertEquals(300, counts.get(Duration.ofMinutes(5)).longValue());
+            assertEquals(600, counts.get(Duration.ofMinutes(15)).longValue());
+            assertThrows(IllegalStateException.class, eventWindowSort::getEventsOlderThatOneMinute);
+            List<String> history = eventWindowSort.getHistoryBetween(now.minusMinutes(10), now.plusSeconds(1))
+                    .map(ConcurrentSkipListMapDemo.Event::getContent)
+                    .collect(Collectors.toList());
+            assertEquals(600, history.size());
+            assertEquals("e599", history.get(0));
+            assertEquals("e0", history.get(599));
+            // one partition for "now" itself, ten more for the 599 seconds before it
+            try (Stream<Path> segments = Files.list(directory)) {
+                assertEquals(11, segments.count());
+            }
+        }
+    }
+
+    @Test
+    public void whenEventsShareATimestamp_thenColdAndHotHistoryAgree() throws Exception {
+        // given
+        ZonedDateTime now = alignedNow();
+        try (MappedEventLog log = MappedEventLog.open(directory, Duration.ofMinutes(1), 4096, now.getZone())) {
+            ConcurrentSkipListMapDemo.EventWindowSort eventWindowSort = new ConcurrentSkipListMapDemo.EventWindowSort(log);
+            IntStream.range(0, 10).forEach(i -> eventWindowSort.acceptEvent(
+                    new ConcurrentSkipListMapDemo.Event(now.plusSeconds(9 - i), "first" + i)));
+            IntStream.range(0, 10).forEach(i -> eventWindowSort.acceptEvent(
+                    new ConcurrentSkipListMapDemo.Event(now.plusSeconds(9 - i), "second" + i)));
+            List<String> hot = eventWindowSort.getHistoryBetween(now, now.plusSeconds(10))
+                    .map(ConcurrentSkipListMapDemo.Event::getContent)
+                    .collect(Collectors.toList());
+
+            // when
+            eventWindowSort.spillOlderThan(now.plusSeconds(10));
+
+            // then
+            List<String> cold = eventWindowSort.getHistoryBetween(now, now.plusSeconds(10))
+                    .map(ConcurrentSkipListMapDemo.Event::getContent)
+                    .collect(Collectors.toList());
+            assertEquals(10, cold.size());
+            assertEquals("second9", cold.get(0));
+            assertEquals(hot, cold);
+        }
+    }
+
+    @Test
+    public void whenReopeningLog_thenReplayRebuildsTheWindow() throws Exception {
+        // given
+        ZonedDateTime now = alignedNow();
+        try (MappedEventLog log = MappedEventLog.open(directory, Duration.ofMinutes(1), 1024, now.getZone())) {
+            IntStream.range(0, 300).forEach(i -> log.append(
+                    new ConcurrentSkipListMapDemo.Event(now.minusSeconds(i), "e" + i)));
+            log.append(new ConcurrentSkipListMapDemo.Event(now.plusMinutes(5), "later"));
+        }
+
+        // when
+        try (MappedEventLog log = MappedEventLog.open(directory, Duration.ofMinutes(1), 1024, now.getZone())) {
+            ConcurrentSkipListMapDemo.EventWindowSort replayed = log.replay(now.minusMinutes(2));
+            AtomicInteger scanned = new AtomicInteger();
+            log.scan(now.minusMinutes(10), now.plusSeconds(1), (epochMilli, payload) -> scanned.incrementAndGet());
+
+            // then
+            assertEquals(300, scanned.get());
+            assertEquals(121, replayed.getEventsBetween(now.minusMinutes(2), now.plusSeconds(1), false).count());
+            assertEquals(300, replayed.getEventsBetween(now.minusMinutes(10), now.plusSeconds(1), false).count());
+            assertEquals(301, replayed.getHistoryBetween(now.minusMinutes(10), now.plusMinutes(10)).count());
+        }
+    }
+}
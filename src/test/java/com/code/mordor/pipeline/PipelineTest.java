@@ -0,0 +1,192 @@
+package com.code.mordor.pipeline;
+
+import com.code.mordor.asyncmethod.ThreadAsyncExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelineTest {
+
+    @Test
+    public void whenChainingDelayTransferAndAsync_thenEveryItemIsDelivered() throws InterruptedException {
+        // given
+        Set<String> delivered = ConcurrentHashMap.newKeySet();
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .stage("delay", Stage.of(i -> i), StageOptions.defaults().delay(Duration.ofMillis(10)))
+                .stage("transfer", Stage.of(i -> "item-" + i), StageOptions.defaults()
+                        .queue(QueueType.TRANSFER)
+                        .parallelism(2))
+                .stage("async", batch -> batch.stream().map(String::toUpperCase).collect(Collectors.toList()),
+                        StageOptions.defaults()
+                                .async(new ThreadAsyncExecutor())
+                                .parallelism(3)
+                                .batchSize(10))
+                .sink(delivered::add);
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.complete();
+
+        // then
+        assertTrue(pipeline.awaitCompletion(10, TimeUnit.SECONDS));
+        assertEquals(100, delivered.size());
+        assertTrue(delivered.contains("ITEM-99"));
+        pipeline.metrics().forEach(metrics -> assertEquals(100, metrics.getProcessed()));
+    }
+
+    @Test
+    public void whenOneStageIsSlow_thenSourceIsBlockedAndStageIsTheBottleneck() throws InterruptedException {
+        // given
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .stage("fast", Stage.of(i -> i), StageOptions.defaults().capacity(2))
+                .stage("slow", Stage.of(i -> {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return i;
+                }), StageOptions.defaults().queue(QueueType.SYNCHRONOUS))
+                .build();
+
+        // when
+        for (int i = 0; i < 30; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.complete();
+
+        // then
+        assertTrue(pipeline.awaitCompletion(10, TimeUnit.SECONDS));
+        List<StageMetrics> metrics = pipeline.metrics();
+        assertEquals(30, metrics.get(1).getProcessed());
+        assertEquals("slow", pipeline.bottleneck().getName());
+        assertTrue(metrics.get(0).getBlockedRatio() > 0.5);
+        assertTrue(pipeline.getSourceBlockedMillis() > 100);
+    }
+
+    @Test
+    public void whenStageFails_thenBatchIsCountedAndPipelineCompletes() throws InterruptedException {
+        // given
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .stage("failing", Stage.of(i -> {
+                    if (i % 2 == 0) {
+                        throw new IllegalArgumentException("even " + i);
+                    }
+                    return i;
+                }), StageOptions.defaults())
+                .build();
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.complete();
+
+        // then
+        assertTrue(pipeline.awaitCompletion(5, TimeUnit.SECONDS));
+        assertEquals(5, pipeline.metrics().get(0).getFailed());
+        assertEquals(5, pipeline.metrics().get(0).getProcessed());
+    }
+
+    @Test
+    public void whenSinkThrows_thenItemsAreCountedAsFailedAndPipelineCompletes() throws InterruptedException {
+        // given
+        Set<Integer> delivered = ConcurrentHashMap.newKeySet();
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .stage("first", Stage.of(i -> i), StageOptions.defaults().capacity(2))
+                .stage("async", Stage.of(i -> i), StageOptions.defaults()
+                        .async(new ThreadAsyncExecutor())
+                        .parallelism(2)
+                        .capacity(2))
+                .sink(i -> {
+                    if (i % 2 == 0) {
+                        throw new IllegalStateException("sink rejected " + i);
+                    }
+                    delivered.add(i);
+                });
+
+        // when
+        for (int i = 0; i < 20; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.complete();
+
+        // then
+        assertTrue(pipeline.awaitCompletion(10, TimeUnit.SECONDS));
+        assertEquals(10, delivered.size());
+        StageMetrics async = pipeline.metrics().get(1);
+        assertEquals(20, async.getProcessed());
+        assertEquals(10, async.getFailed());
+    }
+
+    @Test
+    public void whenSinkThrowsOnSyncStage_thenWorkersKeepDraining() throws InterruptedException {
+        // given
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .stage("only", Stage.of(i -> i), StageOptions.defaults().capacity(2))
+                .sink(i -> {
+                    throw new IllegalStateException("sink rejected " + i);
+                });
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.complete();
+
+        // then
+        assertTrue(pipeline.awaitCompletion(5, TimeUnit.SECONDS));
+        assertEquals(10, pipeline.metrics().get(0).getFailed());
+    }
+
+    @Test
+    public void whenShutDownWhileAsyncCallbacksAreBlocked_thenExecutorThreadsExit() throws InterruptedException {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .stage("async", Stage.of(i -> i), StageOptions.defaults()
+                        .async(new ThreadAsyncExecutor())
+                        .parallelism(2))
+                .stage("stuck", Stage.of(i -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return i;
+                }), StageOptions.defaults().capacity(1))
+                .build();
+        for (int i = 0; i < 4; i++) {
+            pipeline.submit(i);
+        }
+        Thread.sleep(300);
+        assertTrue(executorThreadsAlive() > 0);
+
+        // when
+        pipeline.shutdownNow();
+
+        // then
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executorThreadsAlive() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, executorThreadsAlive());
+        release.countDown();
+    }
+
+    private static long executorThreadsAlive() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("executor-") && thread.isAlive())
+                .count();
+    }
+}